@@ -0,0 +1,95 @@
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Opens an image file for decoding. The size can be read from the header before
+ * the pixels are decoded, with the same reader.
+ *
+ * Unlike ImageIO.read, the reader registered for the file's suffix is tried
+ * first, and every installed reader is only asked to probe the file if that one
+ * cannot decode it (e.g. a PNG named .jpg). Looking readers up still
+ * initializes the whole ImageIO registry. The file is read through a plain
+ * FileImageInputStream, so no disk cache is used.
+ */
+public class ImageInput implements Closeable {
+
+	private final ImageInputStream stream;
+	private final ImageReader reader;
+
+	/**
+	 * Opens an image file
+	 *
+	 * @param file image file
+	 * @throws IOException if the file cannot be read or no reader can decode it
+	 */
+	public ImageInput(File file) throws IOException {
+		String name = file.getName();
+		String suffix = name.substring(name.lastIndexOf('.') + 1);
+
+		this.stream = new FileImageInputStream(file);
+		ImageReader found = null;
+		try {
+			// Reader for the suffix if it recognizes the content, otherwise any reader that
+			// does
+			Iterator<ImageReader> readers = ImageIO.getImageReadersBySuffix(suffix);
+			if (readers.hasNext()) {
+				ImageReader candidate = readers.next();
+				if (candidate.getOriginatingProvider().canDecodeInput(this.stream))
+					found = candidate;
+				else
+					candidate.dispose();
+			}
+			if (found == null) {
+				readers = ImageIO.getImageReaders(this.stream);
+				if (!readers.hasNext())
+					throw new IOException("Unsupported image format: " + file.getPath());
+				found = readers.next();
+			}
+		} catch (IOException e) {
+			this.stream.close();
+			throw e;
+		}
+
+		this.reader = found;
+		this.reader.setInput(this.stream, true, true);
+	}
+
+	/**
+	 *
+	 * @return width of the image in px
+	 * @throws IOException if the header cannot be read
+	 */
+	public int getWidth() throws IOException {
+		return this.reader.getWidth(0);
+	}
+
+	/**
+	 *
+	 * @return height of the image in px
+	 * @throws IOException if the header cannot be read
+	 */
+	public int getHeight() throws IOException {
+		return this.reader.getHeight(0);
+	}
+
+	/**
+	 * Decodes the image
+	 *
+	 * @return decoded image
+	 * @throws IOException if the image cannot be decoded
+	 */
+	public BufferedImage read() throws IOException {
+		return this.reader.read(0);
+	}
+
+	public void close() throws IOException {
+		this.reader.dispose();
+		this.stream.close();
+	}
+}
@@ -0,0 +1,208 @@
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Encodes and writes output images on a separate executor, so that encoding one
+ * image overlaps with carving the next. Files are written through buffered NIO
+ * channels in the configured OutputFormat.
+ */
+public class ImageOutputStage implements Closeable {
+
+	// Size of the buffer between the encoder and the file channel
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final OutputFormat format;
+	private final ExecutorService executor;
+
+	// Writes submitted and not yet checked for failure
+	private final List<Future<File>> pending = new ArrayList<Future<File>>();
+
+	/**
+	 * create output stage
+	 *
+	 * @param format  format every image is encoded in
+	 * @param threads number of encoder threads (at least 1)
+	 */
+	public ImageOutputStage(OutputFormat format, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one encoder thread");
+		this.format = format;
+
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "image-output-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Queues an image to be encoded and written. The image must not be modified
+	 * after it is submitted.
+	 *
+	 * @param image    image to write
+	 * @param basePath path of the output file without its extension
+	 * @return future holding the written file
+	 */
+	public Future<File> submit(BufferedImage image, String basePath) {
+		return submit(image, basePath, null);
+	}
+
+	/**
+	 * Queues an image to be encoded and written, and runs a callback on the
+	 * encoder thread once the image is no longer needed, whether or not the write
+	 * succeeded. The image must not be modified after it is submitted.
+	 *
+	 * @param image       image to write
+	 * @param basePath    path of the output file without its extension
+	 * @param whenWritten run after the write, or null
+	 * @return future holding the written file
+	 */
+	public synchronized Future<File> submit(final BufferedImage image, String basePath,
+			final Runnable whenWritten) {
+		final File file = new File(basePath + "." + this.format.getKind().getExtension());
+		Future<File> future = this.executor.submit(new Callable<File>() {
+			public File call() throws IOException {
+				try {
+					write(image, file);
+					return file;
+				} finally {
+					if (whenWritten != null)
+						whenWritten.run();
+				}
+			}
+		});
+		this.pending.add(future);
+		return future;
+	}
+
+	/**
+	 * Blocks until every submitted image has been written
+	 *
+	 * @throws IOException if any write failed
+	 */
+	public void flush() throws IOException {
+		List<Future<File>> waiting;
+		synchronized (this) {
+			waiting = new ArrayList<Future<File>>(this.pending);
+			this.pending.clear();
+		}
+
+		IOException failure = null;
+		for (Future<File> future : waiting) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+							: new IOException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing images");
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Writes the remaining images and stops the encoder threads
+	 *
+	 * @throws IOException if any write failed
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Encodes an image and writes it to a file through a buffered channel
+	 */
+	private void write(BufferedImage image, File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+		try {
+			switch (this.format.getKind()) {
+			case PNG:
+				PngEncoder.encode(image, out, this.format.getDeflateLevel(), this.format.getPngFilter());
+				break;
+			case JPEG:
+				writeJpeg(image, out);
+				break;
+			case RAW:
+				writeRaw(image, out);
+				break;
+			}
+		} finally {
+			// Closing the stream flushes the buffer and closes the channel
+			out.close();
+		}
+	}
+
+	/**
+	 * Encodes an image as a JPEG at the configured quality
+	 */
+	private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!writers.hasNext())
+			throw new IOException("No JPEG writer available");
+		ImageWriter writer = writers.next();
+
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(this.format.getJpegQuality());
+
+		// Memory cache rather than ImageIO's default temp-file cache
+		ImageOutputStream stream = new MemoryCacheImageOutputStream(out);
+		try {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+			stream.close();
+		}
+	}
+
+	/**
+	 * Dumps the pixels uncompressed as a binary PPM: a short text header followed
+	 * by one R, G, B byte triple per pixel, row by row
+	 */
+	private static void writeRaw(BufferedImage image, OutputStream out) throws IOException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		out.write(("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII"));
+
+		int[] argb = new int[width];
+		byte[] row = new byte[width * 3];
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, argb, 0, width);
+			for (int x = 0; x < width; x++) {
+				row[x * 3] = (byte) (argb[x] >> 16);
+				row[x * 3 + 1] = (byte) (argb[x] >> 8);
+				row[x * 3 + 2] = (byte) argb[x];
+			}
+			out.write(row);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Admits jobs against a shared memory budget. A job reserves its estimated peak
+ * footprint before it starts and releases it when it is done; jobs that do not
+ * fit wait until enough memory has been released. Waiting jobs are admitted in
+ * the order they arrived, and no job gets in ahead of them, so a big job is not
+ * starved by a stream of small ones. A job larger than the whole budget is
+ * admitted only once the gate is empty, so it runs alone.
+ */
+public class MemoryGate {
+
+	// Total bytes jobs may reserve at once
+	private final long budget;
+
+	// Bytes currently reserved by running jobs
+	private long reserved;
+
+	// Jobs waiting in acquire, in arrival order; only the head may be admitted
+	private final Queue<Object> waiting = new ArrayDeque<Object>();
+
+	/**
+	 * create memory gate
+	 *
+	 * @param budget total bytes jobs may reserve at once
+	 */
+	public MemoryGate(long budget) {
+		if (budget <= 0)
+			throw new IllegalArgumentException("Memory budget must be positive");
+		this.budget = budget;
+	}
+
+	/**
+	 *
+	 * @return total bytes jobs may reserve at once
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Reserves memory if it is available right now and no other job is waiting
+	 * for it
+	 *
+	 * @param bytes estimated footprint of the job
+	 * @return bytes reserved (to be passed to release), or 0 if the job does not
+	 *         fit at the moment or would jump the queue
+	 */
+	public synchronized long tryAcquire(long bytes) {
+		long grant = Math.min(bytes, this.budget);
+		if (!this.waiting.isEmpty() || this.reserved + grant > this.budget)
+			return 0;
+		this.reserved += grant;
+		return grant;
+	}
+
+	/**
+	 * Reserves memory, waiting behind the jobs that arrived earlier until enough
+	 * has been released by other jobs
+	 *
+	 * @param bytes estimated footprint of the job
+	 * @return bytes reserved (to be passed to release)
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized long acquire(long bytes) throws InterruptedException {
+		long grant = Math.min(bytes, this.budget);
+		Object ticket = new Object();
+		this.waiting.add(ticket);
+		try {
+			while (this.waiting.peek() != ticket || this.reserved + grant > this.budget)
+				wait();
+		} finally {
+			// Admitted or interrupted, either way the next job is now at the head
+			this.waiting.remove(ticket);
+			notifyAll();
+		}
+		this.reserved += grant;
+		return grant;
+	}
+
+	/**
+	 * Returns memory reserved by a finished job to the budget
+	 *
+	 * @param grant bytes returned by acquire or tryAcquire
+	 */
+	public synchronized void release(long grant) {
+		this.reserved -= grant;
+		notifyAll();
+	}
+}
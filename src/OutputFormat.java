@@ -0,0 +1,162 @@
+import java.util.Locale;
+
+/**
+ * Describes how output images are encoded: the file format and its tuning
+ * knobs (PNG deflate level and filter, JPEG quality). Parsed from specs such as
+ * "png", "png:1:sub", "jpeg:0.85" or "raw".
+ */
+public class OutputFormat {
+
+	/**
+	 * Supported output file formats
+	 */
+	public enum Kind {
+		PNG("png"), JPEG("jpg"), RAW("ppm");
+
+		private final String extension;
+
+		Kind(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 *
+		 * @return file extension, without the dot
+		 */
+		public String getExtension() {
+			return this.extension;
+		}
+	}
+
+	// Names of the PNG filters, indexed by filter type
+	private static final String[] FILTER_NAMES = { "none", "sub", "up", "average", "paeth" };
+
+	// PNG at deflate level 6 with the Up filter on every row. This is not what
+	// ImageIO's PNG writer produced before formats were configurable; it picks its
+	// own level and filters, so file sizes differ.
+	public static final OutputFormat DEFAULT = new OutputFormat(Kind.PNG, 6, PngEncoder.FILTER_UP, 0.9f);
+
+	private final Kind kind;
+	private final int deflateLevel;
+	private final int pngFilter;
+	private final float jpegQuality;
+
+	/**
+	 * create output format
+	 *
+	 * @param kind         file format
+	 * @param deflateLevel PNG deflate level [0, 9]
+	 * @param pngFilter    PNG scanline filter (PngEncoder.FILTER_*)
+	 * @param jpegQuality  JPEG quality [0, 1]
+	 */
+	public OutputFormat(Kind kind, int deflateLevel, int pngFilter, float jpegQuality) {
+		if (deflateLevel < 0 || deflateLevel > 9)
+			throw new IllegalArgumentException("Deflate level must be in [0, 9]");
+		if (pngFilter < PngEncoder.FILTER_NONE || pngFilter > PngEncoder.FILTER_PAETH)
+			throw new IllegalArgumentException("Unknown PNG filter " + pngFilter);
+		if (jpegQuality < 0 || jpegQuality > 1)
+			throw new IllegalArgumentException("JPEG quality must be in [0, 1]");
+		this.kind = kind;
+		this.deflateLevel = deflateLevel;
+		this.pngFilter = pngFilter;
+		this.jpegQuality = jpegQuality;
+	}
+
+	/**
+	 * Parses a format spec: "png[:level[:filter]]", "jpeg[:quality]" or "raw"
+	 *
+	 * @param spec format spec, case insensitive
+	 * @return parsed output format
+	 * @throws IllegalArgumentException if the spec is malformed
+	 */
+	public static OutputFormat parse(String spec) {
+		String[] parts = spec.toLowerCase(Locale.ROOT).split(":");
+		int level = DEFAULT.deflateLevel;
+		int filter = DEFAULT.pngFilter;
+		float quality = DEFAULT.jpegQuality;
+
+		try {
+			switch (parts[0]) {
+			case "png":
+				if (parts.length > 3)
+					break;
+				if (parts.length > 1)
+					level = Integer.parseInt(parts[1]);
+				if (parts.length > 2)
+					filter = parseFilter(parts[2]);
+				return new OutputFormat(Kind.PNG, level, filter, quality);
+
+			case "jpg":
+			case "jpeg":
+				if (parts.length > 2)
+					break;
+				if (parts.length > 1)
+					quality = Float.parseFloat(parts[1]);
+				return new OutputFormat(Kind.JPEG, level, filter, quality);
+
+			case "raw":
+			case "ppm":
+				if (parts.length > 1)
+					break;
+				return new OutputFormat(Kind.RAW, level, filter, quality);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad output format \"" + spec + "\"", e);
+		}
+		throw new IllegalArgumentException("Bad output format \"" + spec + "\"");
+	}
+
+	/**
+	 * Looks up a PNG filter by name
+	 */
+	private static int parseFilter(String name) {
+		for (int f = 0; f < FILTER_NAMES.length; f++) {
+			if (FILTER_NAMES[f].equals(name))
+				return f;
+		}
+		throw new IllegalArgumentException("Unknown PNG filter \"" + name + "\"");
+	}
+
+	/**
+	 *
+	 * @return file format
+	 */
+	public Kind getKind() {
+		return this.kind;
+	}
+
+	/**
+	 *
+	 * @return PNG deflate level
+	 */
+	public int getDeflateLevel() {
+		return this.deflateLevel;
+	}
+
+	/**
+	 *
+	 * @return PNG scanline filter
+	 */
+	public int getPngFilter() {
+		return this.pngFilter;
+	}
+
+	/**
+	 *
+	 * @return JPEG quality
+	 */
+	public float getJpegQuality() {
+		return this.jpegQuality;
+	}
+
+	public String toString() {
+		switch (this.kind) {
+		case PNG:
+			return "png:" + this.deflateLevel + ":" + FILTER_NAMES[this.pngFilter];
+		case JPEG:
+			return "jpeg:" + this.jpegQuality;
+		default:
+			return "raw";
+		}
+	}
+}
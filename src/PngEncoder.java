@@ -0,0 +1,218 @@
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimal PNG encoder for 8-bit RGB images. Unlike ImageIO's PNG writer, the
+ * deflate level and the scanline filter can be chosen, which lets callers trade
+ * file size against encode latency.
+ */
+public class PngEncoder {
+
+	// Scanline filter types, as numbered in the PNG specification
+	public static final int FILTER_NONE = 0;
+	public static final int FILTER_SUB = 1;
+	public static final int FILTER_UP = 2;
+	public static final int FILTER_AVERAGE = 3;
+	public static final int FILTER_PAETH = 4;
+
+	// Signature every PNG file starts with
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	// Bytes per pixel (R, G, B)
+	private static final int BPP = 3;
+
+	// Largest IDAT chunk written; compressed data is streamed out in chunks of
+	// this size as the deflater produces it
+	private static final int IDAT_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Writes everything written to it as a sequence of IDAT chunks of at most
+	 * IDAT_CHUNK_SIZE bytes, so the compressed image is never held whole
+	 */
+	private static class IdatOutputStream extends OutputStream {
+		private final OutputStream out;
+		private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+		private int count;
+
+		IdatOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		public void write(int b) throws IOException {
+			if (this.count == this.buffer.length)
+				flushChunk();
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (this.count == this.buffer.length)
+					flushChunk();
+				int n = Math.min(len, this.buffer.length - this.count);
+				System.arraycopy(b, off, this.buffer, this.count, n);
+				this.count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Writes the buffered bytes as one IDAT chunk
+		 */
+		void flushChunk() throws IOException {
+			if (this.count > 0) {
+				writeChunk(this.out, "IDAT", this.buffer, this.count);
+				this.count = 0;
+			}
+		}
+	}
+
+	/**
+	 * Encodes an image as an RGB PNG and writes it to the stream
+	 *
+	 * @param image  image to encode (alpha is dropped)
+	 * @param out    stream to write the PNG to (not closed)
+	 * @param level  deflate level [0, 9], 0 being stored and 9 being smallest
+	 * @param filter scanline filter applied to every row (FILTER_*)
+	 * @throws IOException              if the stream cannot be written
+	 * @throws IllegalArgumentException if level or filter is out of range
+	 */
+	public static void encode(BufferedImage image, OutputStream out, int level, int filter) throws IOException {
+		if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Deflate level must be in [0, 9]");
+		if (filter < FILTER_NONE || filter > FILTER_PAETH)
+			throw new IllegalArgumentException("Unknown PNG filter " + filter);
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		out.write(SIGNATURE);
+
+		/* Header: dimensions, bit depth 8, color type 2 (RGB), no interlacing */
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		headerData.writeByte(8);
+		headerData.writeByte(2);
+		headerData.writeByte(0);
+		headerData.writeByte(0);
+		headerData.writeByte(0);
+		writeChunk(out, "IHDR", header.toByteArray(), header.size());
+
+		/* Filtered and deflated scanlines, streamed out as IDAT chunks */
+		IdatOutputStream idat = new IdatOutputStream(out);
+		Deflater deflater = new Deflater(level);
+		try {
+			DeflaterOutputStream deflated = new DeflaterOutputStream(idat, deflater, IDAT_CHUNK_SIZE);
+
+			int[] argb = new int[width];
+			byte[] previous = new byte[width * BPP];
+			byte[] current = new byte[width * BPP];
+			byte[] filtered = new byte[width * BPP + 1];
+
+			for (int y = 0; y < height; y++) {
+
+				// Unpack one row into R, G, B bytes
+				image.getRGB(0, y, width, 1, argb, 0, width);
+				for (int x = 0; x < width; x++) {
+					current[x * BPP] = (byte) (argb[x] >> 16);
+					current[x * BPP + 1] = (byte) (argb[x] >> 8);
+					current[x * BPP + 2] = (byte) argb[x];
+				}
+
+				filterRow(filter, current, previous, filtered);
+				deflated.write(filtered);
+
+				// Current row becomes the "up" row of the next one
+				byte[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+			deflated.finish();
+		} finally {
+			// Free zlib's native memory now rather than at garbage collection, even if a
+			// write failed
+			deflater.end();
+		}
+		idat.flushChunk();
+
+		writeChunk(out, "IEND", new byte[0], 0);
+	}
+
+	/**
+	 * Applies a PNG filter to one scanline
+	 *
+	 * @param filter   filter type (FILTER_*)
+	 * @param row      unfiltered bytes of the scanline
+	 * @param previous unfiltered bytes of the scanline above (all zero for the
+	 *                 first row)
+	 * @param out      filter type byte followed by the filtered bytes
+	 */
+	private static void filterRow(int filter, byte[] row, byte[] previous, byte[] out) {
+		out[0] = (byte) filter;
+		for (int k = 0; k < row.length; k++) {
+
+			// Bytes to the left, above, and above-left of the current byte
+			int a = k >= BPP ? row[k - BPP] & 0xff : 0;
+			int b = previous[k] & 0xff;
+			int c = k >= BPP ? previous[k - BPP] & 0xff : 0;
+
+			int predictor;
+			switch (filter) {
+			case FILTER_SUB:
+				predictor = a;
+				break;
+			case FILTER_UP:
+				predictor = b;
+				break;
+			case FILTER_AVERAGE:
+				predictor = (a + b) >> 1;
+				break;
+			case FILTER_PAETH:
+				predictor = paeth(a, b, c);
+				break;
+			default:
+				predictor = 0;
+			}
+			out[k + 1] = (byte) (row[k] - predictor);
+		}
+	}
+
+	/**
+	 * Paeth predictor: whichever of left, up, and up-left is closest to
+	 * left + up - up-left
+	 */
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc)
+			return a;
+		else if (pb <= pc)
+			return b;
+		else
+			return c;
+	}
+
+	/**
+	 * Writes a length-prefixed, CRC-suffixed PNG chunk
+	 */
+	private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		DataOutputStream chunk = new DataOutputStream(out);
+		chunk.writeInt(length);
+		chunk.write(typeBytes);
+		chunk.write(data, 0, length);
+		chunk.writeInt((int) crc.getValue());
+	}
+}
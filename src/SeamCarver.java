@@ -0,0 +1,796 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.PrintStream;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Removes seams from an image until it has shrunk by the requested number of
+ * rows and columns. Without a time budget every seam is found on a freshly
+ * computed energy map, exactly as SeamCarving always has. With a budget, the
+ * carver tracks how fast it is removing seams and, whenever the remaining seams
+ * would not fit into the remaining time, falls back to a cheaper strategy:
+ * first batches of seams per energy map, then seams found on a coarser energy
+ * map, and finally a plain rescale of whatever is left.
+ *
+ * Energy is computed from all three color channels by default, or in LUMA mode
+ * from a luminance plane, derived once per image by the caller or at the start
+ * of the carve, and carved along with the pixels.
+ *
+ * A carver runs one carve at a time. cancel() may be called from any thread to
+ * stop the running carve between seams.
+ */
+public class SeamCarver {
+
+	/**
+	 * Ways of removing seams, from best quality to cheapest
+	 */
+	public enum Strategy {
+		// One seam per energy map, as in SeamCarving
+		EXACT,
+		// Several seams per energy map, carving the map along with the pixels
+		MULTI_SEAM,
+		// Like MULTI_SEAM, but seams are found on a map at half resolution along the
+		// seam
+		COARSE_SEAM,
+		// Whatever is left is removed by rescaling the image
+		SCALE,
+		// One seam per energy map of a strip, as in TileCarver; seams cannot cross
+		// strip boundaries. Not part of the fallback chain.
+		TILED;
+
+		/**
+		 *
+		 * @return next cheaper strategy, or SCALE if this is the cheapest (TILED has
+		 *         no cheaper strategy and returns itself)
+		 */
+		public Strategy cheaper() {
+			return this == SCALE || this == TILED ? this : values()[ordinal() + 1];
+		}
+	}
+
+	/**
+	 * What the energy of a pixel is computed from
+	 */
+	public enum EnergyMode {
+		// Gradients of the red, green and blue channels, averaged
+		RGB,
+		// Gradients of a luminance plane derived once per image and carved along
+		// with the pixels
+		LUMA
+	}
+
+	/**
+	 * Outcome of a carve: the resized image and how it was produced
+	 */
+	public static class Result {
+
+		private final Color[][] image;
+		private final Strategy strategy;
+		private final int[] seams;
+		private final double removedEnergy;
+		private final long nanos;
+
+		Result(Color[][] image, Strategy strategy, int[] seams, double removedEnergy, long nanos) {
+			this.image = image;
+			this.strategy = strategy;
+			this.seams = seams;
+			this.removedEnergy = removedEnergy;
+			this.nanos = nanos;
+		}
+
+		/**
+		 *
+		 * @return resized image
+		 */
+		public Color[][] getImage() {
+			return this.image;
+		}
+
+		/**
+		 *
+		 * @return cheapest strategy that contributed to the output
+		 */
+		public Strategy getStrategy() {
+			return this.strategy;
+		}
+
+		/**
+		 *
+		 * @param strategy strategy in question
+		 * @return number of rows and columns removed with that strategy
+		 */
+		public int getSeams(Strategy strategy) {
+			return this.seams[strategy.ordinal()];
+		}
+
+		/**
+		 *
+		 * @return total energy of the pixels removed by seams (not counting SCALE),
+		 *         on the energy maps they were found on; lower means better seams
+		 */
+		public double getRemovedEnergy() {
+			return this.removedEnergy;
+		}
+
+		/**
+		 *
+		 * @return time the carve took in ns, counted from the start of its budget
+		 */
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		public String toString() {
+			// Only the strategies that removed something
+			StringBuilder builder = new StringBuilder(this.strategy.toString()).append(" (");
+			String separator = "";
+			for (Strategy s : Strategy.values()) {
+				if (getSeams(s) > 0) {
+					builder.append(separator).append(s).append(' ').append(getSeams(s));
+					separator = ", ";
+				}
+			}
+			return builder.append("), removed energy ").append(Math.round(this.removedEnergy)).toString();
+		}
+	}
+
+	// Seams carved per energy map by MULTI_SEAM and COARSE_SEAM
+	private static final int MULTI_SEAM_BATCH = 8;
+	private static final int COARSE_SEAM_BATCH = 16;
+
+	// Weight of the newest measurement in the running time-per-seam estimate
+	private static final double RATE_SMOOTHING = 0.3;
+
+	// Approximate heap sizes in bytes on a 64-bit JVM with compressed references
+	static final int REF_BYTES = 4;
+	private static final int COLOR_BYTES = 32;
+	private static final int PAIR_BYTES = 24;
+	private static final int DOUBLE_BYTES = 8;
+
+	// Time budget in ns, or 0 for none
+	private final long budgetNanos;
+
+	// Where "V", "H" and "S" are printed as seams are removed, or null
+	private PrintStream progress;
+
+	// Whether to keep only one seam path array alive at a time
+	private boolean lowMemory;
+
+	// What pixel energy is computed from
+	private EnergyMode energyMode = EnergyMode.RGB;
+
+	// Set by cancel(), cleared when a carve finishes
+	private volatile boolean cancelled;
+
+	// State of the carve in progress
+	private Color[][] resized;
+	private byte[][] luma;
+	private int deltaXt;
+	private int deltaYt;
+	private int[] seams;
+	private double removedEnergy;
+
+	/**
+	 * create carver
+	 *
+	 * @param budgetMillis time budget for one carve in ms, or 0 to always carve
+	 *                     exactly
+	 */
+	public SeamCarver(long budgetMillis) {
+		if (budgetMillis < 0)
+			throw new IllegalArgumentException("Negative time budget");
+		this.budgetNanos = budgetMillis * 1000000;
+	}
+
+	/**
+	 * sets the stream progress is printed to (null for none)
+	 */
+	public void setProgress(PrintStream progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * sets whether the carver trades time for memory: exact carving then builds
+	 * the vertical and horizontal seam path arrays one after the other, and
+	 * rebuilds the one it carves, instead of holding both at once
+	 */
+	public void setLowMemory(boolean lowMemory) {
+		this.lowMemory = lowMemory;
+	}
+
+	/**
+	 * sets what pixel energy is computed from (RGB by default)
+	 */
+	public void setEnergyMode(EnergyMode energyMode) {
+		this.energyMode = energyMode;
+	}
+
+	/**
+	 * Computes the energy map of an image the way this carver does
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return array of energy values for each pixel
+	 */
+	public double[][] energy(Color[][] image) {
+		return energy(image, null);
+	}
+
+	/**
+	 * Computes the energy map of an image the way this carver does, reusing a
+	 * luminance plane already derived from it
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @param luma  luminance plane of the image, or null to derive it if needed
+	 * @return array of energy values for each pixel
+	 */
+	public double[][] energy(Color[][] image, byte[][] luma) {
+		if (this.energyMode == EnergyMode.LUMA)
+			return SeamCarving.lumaEnergyFunction(luma != null ? luma : SeamCarving.luminancePlane(image));
+		return SeamCarving.energyFunction(image);
+	}
+
+	/**
+	 * Finds the minimum vertical seam of an image the way this carver's exact
+	 * strategy does
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return for each row j, the column i of the seam pixel
+	 */
+	public int[] verticalSeam(Color[][] image) {
+		return findSeamVertical(energy(image), false);
+	}
+
+	/**
+	 * Finds the minimum horizontal seam of an image the way this carver's exact
+	 * strategy does
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return for each column i, the row j of the seam pixel
+	 */
+	public int[] horizontalSeam(Color[][] image) {
+		return findSeamHorizontal(energy(image), false);
+	}
+
+	/**
+	 * Estimates the peak heap a carve of an image needs: the Color array and its
+	 * Color objects, the energy map, the seam path arrays and their pairs, and the
+	 * resized copy of the Color array
+	 *
+	 * @param cols      image width in px
+	 * @param rows      image height in px
+	 * @param lowMemory whether the carve runs in low-memory mode
+	 * @return estimated peak footprint in bytes
+	 */
+	public static long estimatePeakBytes(int cols, int rows, boolean lowMemory) {
+		long pixels = (long) cols * rows;
+		int pathArrays = lowMemory ? 1 : 2;
+
+		long image = pixels * (REF_BYTES + COLOR_BYTES);
+		long energy = pixels * DOUBLE_BYTES;
+		long paths = pathArrays * pixels * (REF_BYTES + PAIR_BYTES);
+		long resized = pixels * REF_BYTES;
+		return image + energy + paths + resized;
+	}
+
+	/**
+	 * Asks the running carve to stop. The carve throws a CancellationException
+	 * before removing its next seam. If no carve is running, the next one stops
+	 * before removing any seam.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Shrinks an image by removing vertical and horizontal seams
+	 *
+	 * @param image  2D array of Color objects representing the image (its columns
+	 *               are modified)
+	 * @param deltaX number of columns to remove (vertical seams)
+	 * @param deltaY number of rows to remove (horizontal seams)
+	 * @return resized image and the strategy that produced it
+	 * @throws CancellationException if cancel() was called or the thread was
+	 *                               interrupted
+	 */
+	public Result carve(Color[][] image, int deltaX, int deltaY) {
+		return carve(image, null, deltaX, deltaY, System.nanoTime());
+	}
+
+	/**
+	 * Shrinks an image by removing vertical and horizontal seams, within a budget
+	 * that started earlier: work done for this image before the carve, like its
+	 * energy map output, is charged to the budget too
+	 *
+	 * @param image     2D array of Color objects representing the image (its
+	 *                  columns are modified)
+	 * @param luma      luminance plane of the image (not modified), or null to
+	 *                  derive it in LUMA mode
+	 * @param deltaX    number of columns to remove (vertical seams)
+	 * @param deltaY    number of rows to remove (horizontal seams)
+	 * @param startTime System.nanoTime() at which the budget started
+	 * @return resized image and the strategy that produced it
+	 * @throws CancellationException if cancel() was called or the thread was
+	 *                               interrupted
+	 */
+	public Result carve(Color[][] image, byte[][] luma, int deltaX, int deltaY, long startTime) {
+		long deadline = startTime + this.budgetNanos;
+
+		this.resized = image.clone();
+		if (this.energyMode != EnergyMode.LUMA)
+			this.luma = null;
+		else
+			this.luma = luma != null ? luma : SeamCarving.luminancePlane(image);
+		this.deltaXt = deltaX;
+		this.deltaYt = deltaY;
+		this.seams = new int[Strategy.values().length];
+		this.removedEnergy = 0;
+
+		// Go straight to rescaling if the budget was spent before the carve started
+		Strategy strategy = this.budgetNanos != 0 && System.nanoTime() >= deadline ? Strategy.SCALE
+				: Strategy.EXACT;
+
+		// Smoothed time per seam of the current strategy, negative until measured
+		double nanosPerSeam = -1;
+
+		try {
+			while (this.deltaXt > 0 || this.deltaYt > 0) {
+				if (this.cancelled || Thread.currentThread().isInterrupted())
+					throw new CancellationException("Carve cancelled");
+
+				long stepStart = System.nanoTime();
+				int carved;
+				switch (strategy) {
+				case EXACT:
+					carved = carveExact();
+					break;
+				case MULTI_SEAM:
+					carved = carveBatch(MULTI_SEAM_BATCH, false);
+					break;
+				case COARSE_SEAM:
+					carved = carveBatch(COARSE_SEAM_BATCH, true);
+					break;
+				default:
+					carved = carveScale();
+				}
+				this.seams[strategy.ordinal()] += carved;
+				long stepEnd = System.nanoTime();
+
+				if (this.budgetNanos == 0)
+					continue;
+
+				// Update the estimate of time per seam for this strategy
+				double measured = (double) (stepEnd - stepStart) / carved;
+				nanosPerSeam = nanosPerSeam < 0 ? measured
+						: RATE_SMOOTHING * measured + (1 - RATE_SMOOTHING) * nanosPerSeam;
+
+				// Fall back to a cheaper strategy if the rest will not fit into the budget
+				// Every step but SCALE computes at least one energy map and seam path array,
+				// so skip to SCALE once another step like this one would overrun
+				long remainingTime = deadline - stepEnd;
+				if (remainingTime <= stepEnd - stepStart) {
+					strategy = Strategy.SCALE;
+				} else if (nanosPerSeam * (this.deltaXt + this.deltaYt) > remainingTime
+						&& strategy != Strategy.SCALE) {
+					strategy = strategy.cheaper();
+					nanosPerSeam = -1;
+				}
+			}
+
+			if (this.progress != null)
+				this.progress.println();
+
+			// Report the cheapest strategy that actually removed something
+			Strategy used = Strategy.EXACT;
+			for (Strategy s : Strategy.values()) {
+				if (this.seams[s.ordinal()] > 0)
+					used = s;
+			}
+			return new Result(this.resized, used, this.seams, this.removedEnergy, System.nanoTime() - startTime);
+		} finally {
+			this.resized = null;
+			this.luma = null;
+			this.cancelled = false;
+		}
+	}
+
+	/**
+	 * Removes one seam, recomputing the energy map and both seam path arrays
+	 * first, exactly like the original carving loop in SeamCarving
+	 *
+	 * @return number of seams removed
+	 */
+	private int carveExact() {
+
+		// Get energy array for resized array
+		double[][] energyArr = currentEnergy();
+
+		if (this.lowMemory)
+			return carveExactLowMemory(energyArr);
+
+		// Get array of seam paths for vertical and horizontal
+		SeamFindingPair[][] pathArrayV = SeamCarving.findVerticalSeams(energyArr);
+		SeamFindingPair[][] pathArrayH = SeamCarving.findHorizontalSeams(energyArr);
+
+		// Get min seam paths for vertical and horizontal
+		SeamFindingPair mPathV = SeamCarving.findMinSeamVertical(pathArrayV);
+		SeamFindingPair mPathH = SeamCarving.findMinSeamHorizontal(pathArrayH);
+
+		// Carve vertical if no horizontal seams are left or if the vertical seam has
+		// less cumulative energy, otherwise carve horizontal
+		if (this.deltaYt == 0 || (this.deltaXt != 0 && mPathV.getDouble() < mPathH.getDouble()))
+			carveVertical(pathArrayV, energyArr);
+		else
+			carveHorizontal(pathArrayH, energyArr);
+		return 1;
+	}
+
+	/**
+	 * Removes one seam like carveExact, but never holds both seam path arrays at
+	 * once. The orientation is picked from their minimum seam energies, then the
+	 * path array of that orientation is built again to carve it.
+	 *
+	 * @param energyArr energy map of the current image
+	 * @return number of seams removed
+	 */
+	private int carveExactLowMemory(double[][] energyArr) {
+		boolean vertical;
+		if (this.deltaYt == 0)
+			vertical = true;
+		else if (this.deltaXt == 0)
+			vertical = false;
+		else
+			vertical = minSeamEnergy(energyArr, true, false) < minSeamEnergy(energyArr, false, false);
+
+		if (vertical)
+			carveVertical(SeamCarving.findVerticalSeams(energyArr), energyArr);
+		else
+			carveHorizontal(SeamCarving.findHorizontalSeams(energyArr), energyArr);
+		return 1;
+	}
+
+	/**
+	 * Removes the minimum vertical seam of a path array from the image, and from
+	 * the luminance plane if there is one
+	 */
+	private void carveVertical(SeamFindingPair[][] pathArray, double[][] energyArr) {
+		int[] seam = SeamCarving.traceSeamVertical(pathArray);
+		this.removedEnergy += seamEnergyVertical(energyArr, seam);
+		if (this.luma != null)
+			this.luma = removeSeamVertical(this.luma, seam);
+		this.resized = SeamCarving.carveSeamVertical(pathArray, this.resized);
+		this.deltaXt--;
+		print("V");
+	}
+
+	/**
+	 * Removes the minimum horizontal seam of a path array from the image, and from
+	 * the luminance plane if there is one
+	 */
+	private void carveHorizontal(SeamFindingPair[][] pathArray, double[][] energyArr) {
+		int[] seam = SeamCarving.traceSeamHorizontal(pathArray);
+		this.removedEnergy += seamEnergyHorizontal(energyArr, seam);
+		if (this.luma != null)
+			this.luma = removeSeamHorizontal(this.luma, seam);
+		this.resized = SeamCarving.carveSeamHorizontal(pathArray, this.resized);
+		this.deltaYt--;
+		print("H");
+	}
+
+	/**
+	 * Removes up to batch seams of one orientation from a single energy map. The
+	 * energy map is carved along with the pixels instead of being recomputed, so
+	 * the energy next to removed seams goes slightly stale.
+	 *
+	 * @param batch  maximum number of seams to remove
+	 * @param coarse whether to find seams on an energy map with half the
+	 *               resolution along the seam
+	 * @return number of seams removed
+	 */
+	private int carveBatch(int batch, boolean coarse) {
+		double[][] energyArr = currentEnergy();
+
+		// Pick the orientation once for the whole batch
+		boolean vertical;
+		if (this.deltaYt == 0)
+			vertical = true;
+		else if (this.deltaXt == 0)
+			vertical = false;
+		else
+			vertical = minSeamEnergy(energyArr, true, coarse) < minSeamEnergy(energyArr, false, coarse);
+
+		int count = Math.min(batch, vertical ? this.deltaXt : this.deltaYt);
+		for (int k = 0; k < count; k++) {
+			if (vertical) {
+				int[] seam = findSeamVertical(energyArr, coarse);
+				this.removedEnergy += seamEnergyVertical(energyArr, seam);
+				this.resized = removeSeamVertical(this.resized, seam);
+				energyArr = removeSeamVertical(energyArr, seam);
+				if (this.luma != null)
+					this.luma = removeSeamVertical(this.luma, seam);
+				this.deltaXt--;
+				print("V");
+			} else {
+				int[] seam = findSeamHorizontal(energyArr, coarse);
+				this.removedEnergy += seamEnergyHorizontal(energyArr, seam);
+				this.resized = removeSeamHorizontal(this.resized, seam);
+				energyArr = removeSeamHorizontal(energyArr, seam);
+				if (this.luma != null)
+					this.luma = removeSeamHorizontal(this.luma, seam);
+				this.deltaYt--;
+				print("H");
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all remaining rows and columns at once by rescaling the image
+	 *
+	 * @return number of rows and columns removed
+	 */
+	private int carveScale() {
+		int cols = this.resized.length;
+		int rows = this.resized[0].length;
+		int newCols = cols - this.deltaXt;
+		int newRows = rows - this.deltaYt;
+
+		BufferedImage source = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+		for (int i = 0; i < cols; i++) {
+			for (int j = 0; j < rows; j++) {
+				source.setRGB(i, j, this.resized[i][j].getRGB());
+			}
+		}
+
+		// Bilinear scale to the target size
+		BufferedImage scaled = new BufferedImage(newCols, newRows, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaled.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		graphics.drawImage(source, 0, 0, newCols, newRows, null);
+		graphics.dispose();
+
+		this.resized = new Color[newCols][newRows];
+		for (int i = 0; i < newCols; i++) {
+			for (int j = 0; j < newRows; j++) {
+				this.resized[i][j] = new Color(scaled.getRGB(i, j));
+			}
+		}
+		if (this.luma != null)
+			this.luma = SeamCarving.luminancePlane(this.resized);
+
+		int removed = this.deltaXt + this.deltaYt;
+		this.deltaXt = 0;
+		this.deltaYt = 0;
+		print("S");
+		return removed;
+	}
+
+	/**
+	 * Energy map of the image being carved, from the luminance plane in LUMA mode
+	 */
+	private double[][] currentEnergy() {
+		if (this.luma != null)
+			return SeamCarving.lumaEnergyFunction(this.luma);
+		return SeamCarving.energyFunction(this.resized);
+	}
+
+	/**
+	 * Cumulative energy of the minimum seam of one orientation
+	 */
+	private static double minSeamEnergy(double[][] energyArr, boolean vertical, boolean coarse) {
+		if (vertical) {
+			double[][] map = coarse ? coarsenRows(energyArr) : energyArr;
+			return SeamCarving.findMinSeamVertical(SeamCarving.findVerticalSeams(map)).getDouble();
+		} else {
+			double[][] map = coarse ? coarsenColumns(energyArr) : energyArr;
+			return SeamCarving.findMinSeamHorizontal(SeamCarving.findHorizontalSeams(map)).getDouble();
+		}
+	}
+
+	/**
+	 * Finds the minimum vertical seam, optionally on a map with half as many rows
+	 *
+	 * @return for each row j, the column i of the seam pixel
+	 */
+	private static int[] findSeamVertical(double[][] energyArr, boolean coarse) {
+		if (!coarse)
+			return SeamCarving.traceSeamVertical(SeamCarving.findVerticalSeams(energyArr));
+
+		// Each coarse row stands for two rows, which share its seam column
+		int[] coarseSeam = SeamCarving.traceSeamVertical(SeamCarving.findVerticalSeams(coarsenRows(energyArr)));
+		int[] seam = new int[energyArr[0].length];
+		for (int j = 0; j < seam.length; j++) {
+			seam[j] = coarseSeam[j / 2];
+		}
+		return seam;
+	}
+
+	/**
+	 * Finds the minimum horizontal seam, optionally on a map with half as many
+	 * columns
+	 *
+	 * @return for each column i, the row j of the seam pixel
+	 */
+	private static int[] findSeamHorizontal(double[][] energyArr, boolean coarse) {
+		if (!coarse)
+			return SeamCarving.traceSeamHorizontal(SeamCarving.findHorizontalSeams(energyArr));
+
+		// Each coarse column stands for two columns, which share its seam row
+		int[] coarseSeam = SeamCarving
+				.traceSeamHorizontal(SeamCarving.findHorizontalSeams(coarsenColumns(energyArr)));
+		int[] seam = new int[energyArr.length];
+		for (int i = 0; i < seam.length; i++) {
+			seam[i] = coarseSeam[i / 2];
+		}
+		return seam;
+	}
+
+	/**
+	 * Sums each pair of rows of an energy map into one
+	 */
+	private static double[][] coarsenRows(double[][] energyArr) {
+		int rows = energyArr[0].length;
+		double[][] coarse = new double[energyArr.length][(rows + 1) / 2];
+		for (int i = 0; i < energyArr.length; i++) {
+			for (int j = 0; j < rows; j++) {
+				coarse[i][j / 2] += energyArr[i][j];
+			}
+		}
+		return coarse;
+	}
+
+	/**
+	 * Sums each pair of columns of an energy map into one
+	 */
+	private static double[][] coarsenColumns(double[][] energyArr) {
+		int rows = energyArr[0].length;
+		double[][] coarse = new double[(energyArr.length + 1) / 2][rows];
+		for (int i = 0; i < energyArr.length; i++) {
+			for (int j = 0; j < rows; j++) {
+				coarse[i / 2][j] += energyArr[i][j];
+			}
+		}
+		return coarse;
+	}
+
+	/**
+	 * Sums the energy of the pixels of a vertical seam
+	 *
+	 * @param energyArr energy map the seam was found on
+	 * @param seam      for each row j, the column i of the seam pixel
+	 * @return total energy of the seam
+	 */
+	static double seamEnergyVertical(double[][] energyArr, int[] seam) {
+		double sum = 0;
+		for (int j = 0; j < seam.length; j++) {
+			sum += energyArr[seam[j]][j];
+		}
+		return sum;
+	}
+
+	/**
+	 * Sums the energy of the pixels of a horizontal seam
+	 *
+	 * @param energyArr energy map the seam was found on
+	 * @param seam      for each column i, the row j of the seam pixel
+	 * @return total energy of the seam
+	 */
+	static double seamEnergyHorizontal(double[][] energyArr, int[] seam) {
+		double sum = 0;
+		for (int i = 0; i < seam.length; i++) {
+			sum += energyArr[i][seam[i]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Removes one pixel per row from an image
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @param seam  for each row j, the column i of the pixel to remove
+	 * @return image with one column less
+	 */
+	static Color[][] removeSeamVertical(Color[][] image, int[] seam) {
+		Color[][] resized = new Color[image.length - 1][image[0].length];
+		for (int i = 0; i < resized.length; i++) {
+			for (int j = 0; j < resized[i].length; j++) {
+				resized[i][j] = image[i < seam[j] ? i : i + 1][j];
+			}
+		}
+		return resized;
+	}
+
+	/**
+	 * Removes one value per row from a 2D array of doubles
+	 *
+	 * @param array 2D array indexed [column][row]
+	 * @param seam  for each row j, the column i of the value to remove
+	 * @return array with one column less
+	 */
+	static double[][] removeSeamVertical(double[][] array, int[] seam) {
+		double[][] resized = new double[array.length - 1][array[0].length];
+		for (int i = 0; i < resized.length; i++) {
+			for (int j = 0; j < resized[i].length; j++) {
+				resized[i][j] = array[i < seam[j] ? i : i + 1][j];
+			}
+		}
+		return resized;
+	}
+
+	/**
+	 * Removes one value per row from a 2D array of bytes
+	 *
+	 * @param array 2D array indexed [column][row]
+	 * @param seam  for each row j, the column i of the value to remove
+	 * @return array with one column less
+	 */
+	static byte[][] removeSeamVertical(byte[][] array, int[] seam) {
+		byte[][] resized = new byte[array.length - 1][array[0].length];
+		for (int i = 0; i < resized.length; i++) {
+			for (int j = 0; j < resized[i].length; j++) {
+				resized[i][j] = array[i < seam[j] ? i : i + 1][j];
+			}
+		}
+		return resized;
+	}
+
+	/**
+	 * Removes one pixel per column from an image
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @param seam  for each column i, the row j of the pixel to remove
+	 * @return image with one row less
+	 */
+	static Color[][] removeSeamHorizontal(Color[][] image, int[] seam) {
+		Color[][] resized = new Color[image.length][];
+		for (int i = 0; i < image.length; i++) {
+			resized[i] = new Color[image[i].length - 1];
+			System.arraycopy(image[i], 0, resized[i], 0, seam[i]);
+			System.arraycopy(image[i], seam[i] + 1, resized[i], seam[i], resized[i].length - seam[i]);
+		}
+		return resized;
+	}
+
+	/**
+	 * Removes one value per column from a 2D array of doubles
+	 *
+	 * @param array 2D array indexed [column][row]
+	 * @param seam  for each column i, the row j of the value to remove
+	 * @return array with one row less
+	 */
+	static double[][] removeSeamHorizontal(double[][] array, int[] seam) {
+		double[][] resized = new double[array.length][];
+		for (int i = 0; i < array.length; i++) {
+			resized[i] = new double[array[i].length - 1];
+			System.arraycopy(array[i], 0, resized[i], 0, seam[i]);
+			System.arraycopy(array[i], seam[i] + 1, resized[i], seam[i], resized[i].length - seam[i]);
+		}
+		return resized;
+	}
+
+	/**
+	 * Removes one value per column from a 2D array of bytes
+	 *
+	 * @param array 2D array indexed [column][row]
+	 * @param seam  for each column i, the row j of the value to remove
+	 * @return array with one row less
+	 */
+	static byte[][] removeSeamHorizontal(byte[][] array, int[] seam) {
+		byte[][] resized = new byte[array.length][];
+		for (int i = 0; i < array.length; i++) {
+			resized[i] = new byte[array[i].length - 1];
+			System.arraycopy(array[i], 0, resized[i], 0, seam[i]);
+			System.arraycopy(array[i], seam[i] + 1, resized[i], seam[i], resized[i].length - seam[i]);
+		}
+		return resized;
+	}
+
+	/**
+	 * Prints progress, if a progress stream is set
+	 */
+	private void print(String s) {
+		if (this.progress != null)
+			this.progress.print(s);
+	}
+}
@@ -1,9 +1,12 @@
 import java.io.*;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.awt.Color;
+import java.awt.Dimension;
 
 /**
  * Runs a seam-carving algorithm for resizing (shrinking) images in the main
@@ -13,11 +16,26 @@ import java.awt.Color;
  * To run the method, place image files into the project folder named
  * "image0.jpg", "image1.jpg", "image2.jpg", etc. for however many images you
  * want to shrink. Make sure the images you want to resize are named in
- * sequential order from 0. Then run SeamCarving.java as a Java application.
+ * sequential order from 0. Then run SeamCarving.java as a Java application, or
+ * build the jar with "mvn package" and run the seamcarve script.
  * 
  * The main method takes three arguments: vertical shrinkage in pixels [0,
  * height), horizontal shrinkage in pixels [0, width), and number of images to
- * resize.
+ * resize. These may be followed by options of the form --name=value:
+ * --format=png[:level[:filter]] | jpeg[:quality] | raw picks how output images
+ * are encoded, --encoders=N sets the number of encoder threads, and
+ * --budget=MS limits the time spent on each image from its energy map output
+ * to the end of the carve (0, the default, means no limit), trading seam
+ * quality for speed when the budget is at risk.
+ * --jobs=N carves up to N images at once, admitted against a memory budget set
+ * with --memory=MB; images that do not fit are queued or carved in low-memory
+ * mode. --energy=luma computes energy on a single luminance channel instead of
+ * averaging the red, green and blue ones (--energy=rgb, the default).
+ * --tiles=N splits the image into N overlapping strips carved in parallel, with
+ * --overlap=PX (default 8) pixels shared between neighbouring strips; more
+ * strips are faster but give worse seams, as the reported removed energy shows
+ * (--tiles=1 is the single-strip baseline). Tiled carving has no time budget,
+ * so --tiles cannot be combined with --budget.
  * 
  * @author aden-siebel
  * @author akari-ishida
@@ -25,8 +43,36 @@ import java.awt.Color;
  */
 public class SeamCarving {
 
-	// RNG for tie-breakers
-	private static Random random = new Random();
+	// Whether tie-breakers always prefer up-left (-1) instead of picking at random
+	private static volatile boolean deterministicTies = false;
+
+	/**
+	 * Makes tie-breaking between equal up-left and up-right path energies
+	 * deterministic (up-left wins), so that seams are reproducible
+	 * 
+	 * @param deterministic true to always prefer up-left, false to pick at random
+	 */
+	static void setDeterministicTies(boolean deterministic) {
+		deterministicTies = deterministic;
+	}
+
+	/**
+	 * Looks up an option of the form --name=value among the arguments after the
+	 * three positional ones
+	 * 
+	 * @param args         command line arguments
+	 * @param name         option name, without the leading dashes
+	 * @param defaultValue value returned if the option is absent
+	 * @return value of the option, or defaultValue
+	 */
+	static String option(String[] args, String name, String defaultValue) {
+		String prefix = "--" + name + "=";
+		for (int k = 3; k < args.length; k++) {
+			if (args[k].startsWith(prefix))
+				return args[k].substring(prefix.length());
+		}
+		return defaultValue;
+	}
 
 	/**
 	 * Takes in an array of RGB values (Color) corresponding to the inputed image,
@@ -35,7 +81,7 @@ public class SeamCarving {
 	 * @param colorArray array of RGB values (Color), corresponding to the image
 	 * @return array of energy values for each pixel
 	 */
-	private static double[][] energyFunction(Color[][] colorArray) {
+	static double[][] energyFunction(Color[][] colorArray) {
 
 		// Array of energy values for each pixel
 		double[][] energyArray = new double[colorArray.length][colorArray[0].length];
@@ -110,6 +156,83 @@ public class SeamCarving {
 		return energyArray;
 	}
 
+	/**
+	 * Takes in an array of RGB values (Color) corresponding to the inputed image,
+	 * and returns the luminance (Rec. 601 luma) of each pixel
+	 * 
+	 * @param colorArray array of RGB values (Color), corresponding to the image
+	 * @return array of luminance values [0, 255] for each pixel, stored as unsigned
+	 *         bytes
+	 */
+	static byte[][] luminancePlane(Color[][] colorArray) {
+		byte[][] lumaArray = new byte[colorArray.length][colorArray[0].length];
+		for (int i = 0; i < colorArray.length; i++) {
+			for (int j = 0; j < colorArray[i].length; j++) {
+				lumaArray[i][j] = luminance(colorArray[i][j].getRGB());
+			}
+		}
+		return lumaArray;
+	}
+
+	/**
+	 * Rec. 601 luma of one pixel
+	 * 
+	 * @param rgb packed RGB value of the pixel
+	 * @return luminance [0, 255], as an unsigned byte
+	 */
+	static byte luminance(int rgb) {
+		int red = (rgb >> 16) & 0xff;
+		int green = (rgb >> 8) & 0xff;
+		int blue = rgb & 0xff;
+		return (byte) ((299 * red + 587 * green + 114 * blue + 500) / 1000);
+	}
+
+	/**
+	 * Takes in an array of luminance values corresponding to the inputed image, and
+	 * returns an array of energy values for each pixel. Same gradients as
+	 * energyFunction, on a single channel instead of the average of three.
+	 * 
+	 * @param lumaArray array of luminance values (unsigned bytes) for each pixel
+	 * @return array of energy values for each pixel
+	 */
+	static double[][] lumaEnergyFunction(byte[][] lumaArray) {
+
+		// Array of energy values for each pixel
+		double[][] energyArray = new double[lumaArray.length][lumaArray[0].length];
+
+		// Variables to store the magnitude of the derivatives of each pixel
+		int ddx, ddy;
+
+		for (int i = 0; i < lumaArray.length; i++) {
+
+			// Columns to the left and right of this one (or this one on an edge)
+			byte[] left = lumaArray[i == 0 ? i : i - 1];
+			byte[] right = lumaArray[i == lumaArray.length - 1 ? i : i + 1];
+			byte[] column = lumaArray[i];
+
+			// Central differences are halved, one-sided ones on the edges are not
+			int xScale = (i == 0 || i == lumaArray.length - 1) ? 1 : 2;
+
+			for (int j = 0; j < column.length; j++) {
+
+				// abs(d/dx)
+				ddx = Math.abs((left[j] & 0xff) - (right[j] & 0xff)) / xScale;
+
+				// abs(d/dy) on top edge, bottom edge, or neither
+				if (j == 0)
+					ddy = Math.abs((column[j + 1] & 0xff) - (column[j] & 0xff));
+				else if (j == column.length - 1)
+					ddy = Math.abs((column[j - 1] & 0xff) - (column[j] & 0xff));
+				else
+					ddy = Math.abs((column[j - 1] & 0xff) - (column[j + 1] & 0xff)) / 2;
+
+				energyArray[i][j] = ddx + ddy;
+			}
+		}
+
+		return energyArray;
+	}
+
 	/**
 	 * Given the energy of each pixel, finds and returns an array of all of the
 	 * minimum paths to each pixel from the left to the right
@@ -119,7 +242,7 @@ public class SeamCarving {
 	 *         pixel and (int) direction to the minimum path (-1, 0, 1 for up-left,
 	 *         straight up, and up-right, respectively)
 	 */
-	private static SeamFindingPair[][] findVerticalSeams(double[][] energyArray) {
+	static SeamFindingPair[][] findVerticalSeams(double[][] energyArray) {
 		// width and height of array with energy values
 		int width = energyArray.length;
 		int height = energyArray[0].length;
@@ -195,7 +318,8 @@ public class SeamCarving {
 							pathEnergyDirArray[i][j] = new SeamFindingPair(0.0, 0);
 
 						// Randomize checking up-left and up-right in case they are both the minimum
-						else if (random.nextInt(2) == 0) {
+						// (up-left first if ties are deterministic)
+						else if (deterministicTies || ThreadLocalRandom.current().nextInt(2) == 0) {
 							// up-left (x - 1)
 							if (minimum == pathEnergyDirArray[i - 1][j - 1].getDouble())
 								pathEnergyDirArray[i][j] = new SeamFindingPair(0.0, -1);
@@ -234,7 +358,7 @@ public class SeamCarving {
 	 *         pixel and (int) direction to the minimum path (-1, 0, 1 for up-left,
 	 *         straight-left, and down-left, respectively)
 	 */
-	private static SeamFindingPair[][] findHorizontalSeams(double[][] energyArray) {
+	static SeamFindingPair[][] findHorizontalSeams(double[][] energyArray) {
 		// width and height of array with energy values
 		int width = energyArray.length;
 		int height = energyArray[0].length;
@@ -310,7 +434,8 @@ public class SeamCarving {
 							pathEnergyDirArray[i][j] = new SeamFindingPair(0.0, 0);
 
 						// Randomize checking up-left and up-right in case they are both the minimum
-						else if (random.nextInt(2) == 0) {
+						// (up-left first if ties are deterministic)
+						else if (deterministicTies || ThreadLocalRandom.current().nextInt(2) == 0) {
 							// up-left (y - 1)
 							if (minimum == pathEnergyDirArray[i - 1][j - 1].getDouble())
 								pathEnergyDirArray[i][j] = new SeamFindingPair(0.0, -1);
@@ -591,6 +716,56 @@ public class SeamCarving {
 		}
 	}
 
+	/**
+	 * Traces the minimum energy vertical seam corresponding to a path array,
+	 * visiting the same pixels carveSeamVertical removes
+	 *
+	 * @param pathArray array of cumulative path energy + directions
+	 * @return array holding, for each row j, the column i of the seam pixel
+	 */
+	public static int[] traceSeamVertical(SeamFindingPair[][] pathArray) {
+
+		// Get index of min energy path
+		int minIndex = findMinSeamVertical(pathArray).getInt();
+
+		int[] seam = new int[pathArray[0].length];
+		int nextDir = pathArray[minIndex][pathArray[0].length - 1].getInt();
+		int nextIndex = minIndex;
+
+		// Trace the path back exactly as carveSeamVertical does
+		for (int j = pathArray[0].length; j > 0; j--) {
+			seam[j - 1] = nextIndex;
+			nextIndex += nextDir;
+			nextDir = pathArray[nextIndex][j - 1].getInt();
+		}
+		return seam;
+	}
+
+	/**
+	 * Traces the minimum energy horizontal seam corresponding to a path array,
+	 * visiting the same pixels carveSeamHorizontal removes
+	 *
+	 * @param pathArray array of cumulative path energy + directions
+	 * @return array holding, for each column i, the row j of the seam pixel
+	 */
+	public static int[] traceSeamHorizontal(SeamFindingPair[][] pathArray) {
+
+		// Get index of min energy path
+		int minIndex = findMinSeamHorizontal(pathArray).getInt();
+
+		int[] seam = new int[pathArray.length];
+		int nextDir = pathArray[pathArray.length - 1][minIndex].getInt();
+		int nextIndex = minIndex;
+
+		// Trace the path back exactly as carveSeamHorizontal does
+		for (int i = pathArray.length; i > 0; i--) {
+			seam[i - 1] = nextIndex;
+			nextIndex += nextDir;
+			nextDir = pathArray[i - 1][nextIndex].getInt();
+		}
+		return seam;
+	}
+
 	/**
 	 * 
 	 * Main method. Takes images (named image0.jpg, image1.jpg, image2.jpg, ...) in
@@ -598,161 +773,347 @@ public class SeamCarving {
 	 * demo seams as .PNG files into folder
 	 * 
 	 * @param args args[0]: vert. reduction in px, args[1]: horiz. reduction in px,
-	 *             args[2]: number of images
+	 *             args[2]: number of images, args[3...]: --format=, --encoders=,
+	 *             --budget=, --jobs=, --memory=, --energy=, --tiles=,
+	 *             --overlap=
 	 * @throws IOException              if file is not found
-	 * @throws IllegalArgumentException if deltaX >= width or deltaY >= length
+	 * @throws IllegalArgumentException if deltaX >= width or deltaY >= length, or
+	 *                                  if --tiles and --budget are both given
 	 */
 	public static void main(String args[]) throws IOException {
 
-		for (int imgNum = 0; imgNum < Integer.parseInt(args[2]); imgNum++) {
+		// No display is needed, so skip probing for one when AWT starts up
+		if (System.getProperty("java.awt.headless") == null)
+			System.setProperty("java.awt.headless", "true");
+
+		// Tiled carving cannot fall back to cheaper strategies, so it has no budget
+		if (Integer.parseInt(option(args, "tiles", "0")) > 0 && Long.parseLong(option(args, "budget", "0")) > 0)
+			throw new IllegalArgumentException("--budget cannot be combined with --tiles");
+
+		// Output images are encoded off the carving thread
+		OutputFormat format = OutputFormat.parse(option(args, "format", OutputFormat.DEFAULT.toString()));
+		int encoders = Integer.parseInt(option(args, "encoders", "1"));
+		final ImageOutputStage output = new ImageOutputStage(format, encoders);
+
+		// Images carved at once, admitted against a memory budget (3/4 of the heap by
+		// default)
+		int jobs = Integer.parseInt(option(args, "jobs", "1"));
+		long defaultMemory = Runtime.getRuntime().maxMemory() / 4 * 3 / (1024 * 1024);
+		final MemoryGate gate = new MemoryGate(
+				Long.parseLong(option(args, "memory", Long.toString(defaultMemory))) * 1024 * 1024);
+
+		final String[] arguments = args;
+		ExecutorService carvers = Executors.newFixedThreadPool(Math.max(jobs, 1));
+
+		// Failure on its way out of main, if any, so closing the output stage cannot
+		// hide it
+		Throwable failure = null;
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int imgNum = 0; imgNum < Integer.parseInt(args[2]); imgNum++) {
+				final int n = imgNum;
+				results.add(carvers.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						processImage(n, arguments, gate, output);
+						return null;
+					}
+				}));
+			}
 
-			// Begin timer
-			long startTime = System.nanoTime();
+			// Wait for every image, rethrowing the first failure
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					if (e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					throw new IOException(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while carving");
+				}
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			carvers.shutdownNow();
 
-			// File should be named "image<N>.jpg" s.t. <N> is elt of [0, number of images)
+			// Wait for the last images to be written
+			try {
+				output.close();
+			} catch (IOException e) {
+				if (failure == null)
+					throw e;
+				failure.addSuppressed(e);
+			}
+		}
+	}
 
-			File file = new File("./image" + imgNum + ".jpg");
+	/**
+	 * Builds a carver configured by the command line options
+	 * 
+	 * @param args command line arguments
+	 * @return carver honoring --budget= and --energy=
+	 */
+	private static SeamCarver newCarver(String[] args) {
+		SeamCarver carver = new SeamCarver(Long.parseLong(option(args, "budget", "0")));
+		carver.setEnergyMode(energyMode(args));
+
+		// Seam-by-seam progress is only readable when one image is carved at a time
+		if (Integer.parseInt(option(args, "jobs", "1")) <= 1)
+			carver.setProgress(System.out);
+		return carver;
+	}
 
-			System.out.println("./image" + imgNum + ".jpg");
-			try {
-				BufferedImage imageSource = ImageIO.read(file);
-
-				// Gets cols (width) and rows (height), and how much to shrink vertically and
-				// horizontally
-				int cols = imageSource.getWidth();
-				int rows = imageSource.getHeight();
-				int deltaY = Integer.parseInt(args[0]);
-				int deltaX = Integer.parseInt(args[1]);
-				if (deltaY >= cols || deltaY < 0 || deltaX >= rows || deltaX < 0)
-					throw new IllegalArgumentException("Too much or negative shrinkage");
-
-				// Print image dimensions
-				System.out.printf("%d by %d pixels\n", cols, rows);
-
-				/* Read into an array of rgb values */
-				Color image[][] = new Color[cols][rows];
-				for (int i = 0; i < cols; i++) {
-					for (int j = 0; j < rows; j++) {
-						int color = imageSource.getRGB(i, j);
-						int red = (color >> 16) & 0xff;
-						int green = (color >> 8) & 0xff;
-						int blue = (color) & 0xff;
-						image[i][j] = new Color(red, green, blue);
-					}
-				}
+	/**
+	 * Reads the energy mode from the command line options
+	 * 
+	 * @param args command line arguments
+	 * @return energy mode selected by --energy=, RGB by default
+	 */
+	private static SeamCarver.EnergyMode energyMode(String[] args) {
+		return SeamCarver.EnergyMode.valueOf(option(args, "energy", "rgb").toUpperCase(Locale.ROOT));
+	}
 
-				/* Generate energy array, save image in grayscale */
-				double[][] energyArray = energyFunction(image);
-				BufferedImage imageEnergy = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
-				File fileEnergy = new File("./energy" + imgNum + ".png");
-				for (int i = 0; i < cols; i++) {
-					for (int j = 0; j < rows; j++) {
-						int r = 255 - (int) energyArray[i][j];
-						int g = 255 - (int) energyArray[i][j];
-						int b = 255 - (int) energyArray[i][j];
-						int col = (r << 16) | (g << 8) | b;
-						imageEnergy.setRGB(i, j, col);
-					}
-				}
-				ImageIO.write(imageEnergy, "PNG", fileEnergy);
-
-				/* Save an image of the image with a seam */
-				BufferedImage imageSeam = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
-				File fileSeam = new File("./seam" + imgNum + ".png");
-				// Copies the energy representation of the photo into the buffered image
-				for (int i = 0; i < cols; i++) {
-					for (int j = 0; j < rows; j++) {
-						imageSeam.setRGB(i, j, imageEnergy.getRGB(i, j));
-					}
-				}
-				// Draws the vertical and horizontal seams
-				drawSeamHorizontal(findHorizontalSeams(energyArray), imageSeam);
-				drawSeamVertical(findVerticalSeams(energyArray), imageSeam);
-				ImageIO.write(imageSeam, "PNG", fileSeam);
-
-				// Save pixels in x and y to shrink
-				int deltaYt = deltaY;
-				int deltaXt = deltaX;
-
-				// Declare variables to prepare for the while loop
-				Color[][] resized = image.clone(); // instantiate this one as our original image
-				double[][] energyArr;
-				SeamFindingPair[][] pathArrayV;
-				SeamFindingPair[][] pathArrayH;
-				SeamFindingPair mPathV;
-				SeamFindingPair mPathH;
-
-				System.out.println("Carving: ");
-
-				// Keep going until we are done with the horizontal and vertical carving.
-				// Recalculates the seam path array every time a seam is removed.
-				while (deltaYt > 0 || deltaXt > 0) {
-
-					// Get energy array for resized array
-					energyArr = energyFunction(resized);
-
-					// Get array of seam paths for vertical and horizontal
-					pathArrayV = findVerticalSeams(energyArr);
-					pathArrayH = findHorizontalSeams(energyArr);
-
-					// Get min seam paths for vertical and horizontal
-					mPathV = findMinSeamVertical(pathArrayV);
-					mPathH = findMinSeamHorizontal(pathArrayH);
-
-					// If no more horizontal seams to be carved, carve vertical seams
-					if (deltaYt == 0) {
-						resized = carveSeamVertical(pathArrayV, resized);
-						deltaXt--;
-						System.out.print("V");
-					}
+	/**
+	 * Estimates the peak heap one image needs: the carve itself plus the decoded
+	 * source, the kept energy map, the energy, seam and resized output images, and
+	 * in LUMA mode the luminance plane
+	 * 
+	 * @param cols       image width in px
+	 * @param rows       image height in px
+	 * @param carveBytes estimated peak footprint of the carve
+	 * @param luma       whether energy is computed on a luminance plane
+	 * @return estimated peak footprint in bytes
+	 */
+	private static long estimateJobBytes(int cols, int rows, long carveBytes, boolean luma) {
+		long pixels = (long) cols * rows;
 
-					// If no more vertical seams to be carved, carve horizontal seams
-					else if (deltaXt == 0) {
-						resized = carveSeamHorizontal(pathArrayH, resized);
-						deltaYt--;
-						System.out.print("H");
-					}
+		// Four int-per-pixel images plus one double per pixel
+		long bytes = carveBytes + pixels * (4 * 4 + 8);
 
-					// If vertical seam has less cumulative energy than the horizontal, carve
-					// vertical
-					else if (mPathV.getDouble() < mPathH.getDouble()) {
-						resized = carveSeamVertical(pathArrayV, resized);
-						deltaXt--;
-						System.out.print("V");
-					}
+		// The luminance plane and the copy each seam removal makes of it
+		if (luma)
+			bytes += pixels * 2;
+		return bytes;
+	}
 
-					// If horizontal seam has less cumulative energy than the vertical, carve
-					// horizontal
-					else {
-						resized = carveSeamHorizontal(pathArrayH, resized);
-						deltaYt--;
-						System.out.print("H");
-					}
-				}
+	/**
+	 * Queues an output image, handing the part of the job's memory grant that
+	 * covers it over to the output stage, which returns it to the gate once the
+	 * image has been written
+	 * 
+	 * @param output    stage the image is written through
+	 * @param gate      memory gate the job was admitted through
+	 * @param available bytes of the job's grant not yet handed over
+	 * @param image     image to write
+	 * @param basePath  path of the output file without its extension
+	 * @return bytes of the grant handed over
+	 */
+	private static long submitOutput(ImageOutputStage output, final MemoryGate gate, long available,
+			BufferedImage image, String basePath) {
+		final long share = Math.min(available, (long) image.getWidth() * image.getHeight() * 4);
+		output.submit(image, basePath, new Runnable() {
+			public void run() {
+				gate.release(share);
+			}
+		});
+		return share;
+	}
 
-				System.out.println();
+	/**
+	 * Reads the dimensions of an image from its header, without decoding it
+	 * 
+	 * @param file image file
+	 * @return width and height in px
+	 * @throws IOException if the file cannot be read or is not an image
+	 */
+	private static Dimension readSize(File file) throws IOException {
+		ImageInput input = new ImageInput(file);
+		try {
+			return new Dimension(input.getWidth(), input.getHeight());
+		} finally {
+			input.close();
+		}
+	}
 
-				// Copies the seam-carved photo into the buffered image
-				BufferedImage imageResized = new BufferedImage(cols - deltaX, rows - deltaY,
-						BufferedImage.TYPE_INT_RGB);
-				File fileResized = new File("./resized" + imgNum + ".png");
-				for (int i = 0; i < cols - deltaX; i++) {
-					for (int j = 0; j < rows - deltaY; j++) {
-						imageResized.setRGB(i, j, resized[i][j].getRGB());
-					}
-				}
-				ImageIO.write(imageResized, "PNG", fileResized);
+	/**
+	 * Decodes an image
+	 * 
+	 * @param file image file
+	 * @return decoded image
+	 * @throws IOException if the file cannot be read or is not an image
+	 */
+	private static BufferedImage readImage(File file) throws IOException {
+		ImageInput input = new ImageInput(file);
+		try {
+			return input.read();
+		} finally {
+			input.close();
+		}
+	}
 
-				// Stop timer
-				long endTime = System.nanoTime();
+	/**
+	 * Resizes one image, queueing its energy map, seam demo, and resized image on
+	 * the output stage. The image is only decoded once the memory gate admits its
+	 * estimated footprint; if the full footprint does not fit, the image is carved
+	 * in low-memory mode (tiled images wait instead). The part of the footprint
+	 * covering the output images stays reserved until they have been written.
+	 * 
+	 * @param imgNum N in "image<N>.jpg"
+	 * @param args   command line arguments
+	 * @param gate   memory gate the job is admitted through
+	 * @param output stage the output images are written through
+	 * @throws IOException              if file is not found
+	 * @throws IllegalArgumentException if deltaX >= width or deltaY >= length
+	 */
+	private static void processImage(int imgNum, String[] args, MemoryGate gate, ImageOutputStage output)
+			throws IOException {
+
+		// Begin timer
+		long startTime = System.nanoTime();
+
+		// File should be named "image<N>.jpg" s.t. <N> is elt of [0, number of images)
+
+		File file = new File("./image" + imgNum + ".jpg");
+
+		System.out.println("./image" + imgNum + ".jpg");
+
+		// Gets cols (width) and rows (height), and how much to shrink vertically and
+		// horizontally
+		Dimension size = readSize(file);
+		int cols = size.width;
+		int rows = size.height;
+		int deltaY = Integer.parseInt(args[0]);
+		int deltaX = Integer.parseInt(args[1]);
+		if (deltaY >= cols || deltaY < 0 || deltaX >= rows || deltaX < 0)
+			throw new IllegalArgumentException("Too much or negative shrinkage");
+
+		// Wait for enough memory, downgrading to low-memory mode if that fits sooner.
+		// Tiled carving has no low-memory mode, so tiled jobs only ever wait.
+		int tiles = Integer.parseInt(option(args, "tiles", "0"));
+		int overlap = Integer.parseInt(option(args, "overlap", "8"));
+		boolean lumaMode = energyMode(args) == SeamCarver.EnergyMode.LUMA;
+		long footprint;
+		long lowFootprint;
+		if (tiles > 0) {
+			footprint = estimateJobBytes(cols, rows, TileCarver.estimatePeakBytes(cols, rows, tiles, overlap),
+					lumaMode);
+			lowFootprint = footprint;
+		} else {
+			footprint = estimateJobBytes(cols, rows, SeamCarver.estimatePeakBytes(cols, rows, false), lumaMode);
+			lowFootprint = estimateJobBytes(cols, rows, SeamCarver.estimatePeakBytes(cols, rows, true), lumaMode);
+		}
+		boolean lowMemory = tiles == 0 && footprint > gate.getBudget();
+		long grant = gate.tryAcquire(lowMemory ? lowFootprint : footprint);
+		if (grant == 0 && tiles == 0 && !lowMemory) {
+			grant = gate.tryAcquire(lowFootprint);
+			lowMemory = grant != 0;
+		}
+		try {
+			if (grant == 0)
+				grant = gate.acquire(lowMemory ? lowFootprint : footprint);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for memory");
+		}
 
-				// Print time for each image to be carved in ms
-				System.out.println("Process successfully completed for " + file.getName() + " in "
-						+ (endTime - startTime) / 1000000 + " ms\n");
+		// Part of the grant covering output images still waiting to be written,
+		// released by the output stage rather than when the carve is done
+		long handedOver = 0;
+		try {
+			BufferedImage imageSource = readImage(file);
+
+			// Print image dimensions
+			System.out.printf("%d by %d pixels%s\n", cols, rows, lowMemory ? " (low-memory mode)" : "");
+
+			/*
+			 * Read into an array of rgb values, and in LUMA mode derive the luminance
+			 * plane in the same pass, once for the energy output and the carve
+			 */
+			Color image[][] = new Color[cols][rows];
+			byte[][] luma = lumaMode ? new byte[cols][rows] : null;
+			for (int i = 0; i < cols; i++) {
+				for (int j = 0; j < rows; j++) {
+					int color = imageSource.getRGB(i, j);
+					int red = (color >> 16) & 0xff;
+					int green = (color >> 8) & 0xff;
+					int blue = (color) & 0xff;
+					image[i][j] = new Color(red, green, blue);
+					if (lumaMode)
+						luma[i][j] = luminance(color);
+				}
+			}
 
-			} catch (IOException e) {
-				throw e;
+			/* Generate energy array, save image in grayscale */
+			// The time budget covers the energy and seam outputs as well as the carve
+			long budgetStart = System.nanoTime();
+			SeamCarver carver = newCarver(args);
+			carver.setLowMemory(lowMemory);
+			double[][] energyArray = carver.energy(image, luma);
+			BufferedImage imageEnergy = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+			for (int i = 0; i < cols; i++) {
+				for (int j = 0; j < rows; j++) {
+					int r = 255 - (int) energyArray[i][j];
+					int g = 255 - (int) energyArray[i][j];
+					int b = 255 - (int) energyArray[i][j];
+					int col = (r << 16) | (g << 8) | b;
+					imageEnergy.setRGB(i, j, col);
+				}
+			}
+			handedOver += submitOutput(output, gate, grant - handedOver, imageEnergy, "./energy" + imgNum);
+
+			/* Save an image of the image with a seam */
+			BufferedImage imageSeam = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+			// Copies the energy representation of the photo into the buffered image
+			for (int i = 0; i < cols; i++) {
+				for (int j = 0; j < rows; j++) {
+					imageSeam.setRGB(i, j, imageEnergy.getRGB(i, j));
+				}
 			}
+			// Draws the vertical and horizontal seams
+			drawSeamHorizontal(findHorizontalSeams(energyArray), imageSeam);
+			drawSeamVertical(findVerticalSeams(energyArray), imageSeam);
+			handedOver += submitOutput(output, gate, grant - handedOver, imageSeam, "./seam" + imgNum);
+
+			System.out.println("Carving: ");
+
+			// Remove the seams, on parallel strips if asked to, otherwise falling back to
+			// cheaper strategies if over budget
+			SeamCarver.Result result;
+			if (tiles > 0) {
+				TileCarver tileCarver = new TileCarver(tiles, overlap);
+				tileCarver.setEnergyMode(energyMode(args));
+				result = tileCarver.carve(image, luma, deltaX, deltaY);
+				System.out.println("Tiles: " + tiles + " (" + result.getNanos() / 1000000 + " ms), " + result);
+			} else {
+				result = carver.carve(image, luma, deltaX, deltaY, budgetStart);
+				System.out.println("Strategy: " + result);
+			}
+			Color[][] resized = result.getImage();
+
+			// Copies the seam-carved photo into the buffered image
+			BufferedImage imageResized = new BufferedImage(cols - deltaX, rows - deltaY,
+					BufferedImage.TYPE_INT_RGB);
+			for (int i = 0; i < cols - deltaX; i++) {
+				for (int j = 0; j < rows - deltaY; j++) {
+					imageResized.setRGB(i, j, resized[i][j].getRGB());
+				}
+			}
+			handedOver += submitOutput(output, gate, grant - handedOver, imageResized, "./resized" + imgNum);
+
+			// Stop timer
+			long endTime = System.nanoTime();
+
+			// Print time for each image to be carved in ms
+			System.out.println("Process successfully completed for " + file.getName() + " in "
+					+ (endTime - startTime) / 1000000 + " ms\n");
+
+		} finally {
+			gate.release(grant - handedOver);
 		}
 	}
 }
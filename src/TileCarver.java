@@ -0,0 +1,297 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Carves very wide or tall images in parallel. Vertical seams are removed from
+ * vertical strips of the image, each on its own worker, and horizontal seams
+ * from horizontal strips. Each strip is a core of columns (rows) it removes its
+ * share of seams from, padded with overlap columns (rows) borrowed from its
+ * neighbours. The overlap only gives the core's edge pixels their real
+ * neighbours for the energy gradients; no seam passes through it, so the carved
+ * cores are stitched back together as they are, without blending.
+ *
+ * Seams cannot cross strip boundaries and all vertical seams are removed before
+ * the horizontal ones, so more strips mean more speedup but worse seams. The
+ * removed energy reported in the result measures the cost: compare it with a
+ * single-strip carve of the same image.
+ */
+public class TileCarver {
+
+	// Energy given to overlap pixels so that no minimum seam passes through them
+	private static final double BLOCKED = 1e9;
+
+	// Number of strips, and columns (rows) of overlap on each side of a strip
+	private final int tiles;
+	private final int overlap;
+
+	// What pixel energy is computed from
+	private SeamCarver.EnergyMode energyMode = SeamCarver.EnergyMode.RGB;
+
+	/**
+	 * A strip being carved: its pixels, its luminance plane in LUMA mode, and the
+	 * energy its seams removed
+	 */
+	private static class Strip {
+		Color[][] pixels;
+		byte[][] luma;
+		double removedEnergy;
+	}
+
+	/**
+	 * create tile carver
+	 *
+	 * @param tiles   number of strips to split the image into (1 carves the whole
+	 *                image on one worker)
+	 * @param overlap columns (rows) each strip borrows from each neighbour
+	 */
+	public TileCarver(int tiles, int overlap) {
+		if (tiles < 1)
+			throw new IllegalArgumentException("Need at least one tile");
+		if (overlap < 1)
+			throw new IllegalArgumentException("Overlap must be at least 1 px");
+		this.tiles = tiles;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * sets what pixel energy is computed from (RGB by default)
+	 */
+	public void setEnergyMode(SeamCarver.EnergyMode energyMode) {
+		this.energyMode = energyMode;
+	}
+
+	/**
+	 * Estimates the peak heap a tiled carve of an image needs: every strip's
+	 * energy map and seam path array at once (strips keep one path array each, as
+	 * in low-memory mode, but together span the image plus two overlaps per
+	 * strip), and the transposed and stitched copies of the Color array. Colors
+	 * shared between strips are counted per strip, so this errs on the high side.
+	 *
+	 * @param cols    image width in px
+	 * @param rows    image height in px
+	 * @param tiles   number of strips
+	 * @param overlap columns (rows) each strip borrows from each neighbour
+	 * @return estimated peak footprint in bytes
+	 */
+	public static long estimatePeakBytes(int cols, int rows, int tiles, int overlap) {
+		int margins = (int) Math.min(Integer.MAX_VALUE / 2, 2L * overlap * tiles);
+		long strips = Math.max(SeamCarver.estimatePeakBytes(cols + margins, rows, true),
+				SeamCarver.estimatePeakBytes(cols, rows + margins, true));
+		long copies = 2L * cols * rows * SeamCarver.REF_BYTES;
+		return strips + copies;
+	}
+
+	/**
+	 * Shrinks an image by removing vertical, then horizontal seams, strip by strip
+	 * in parallel
+	 *
+	 * @param image  2D array of Color objects representing the image
+	 * @param deltaX number of columns to remove (vertical seams)
+	 * @param deltaY number of rows to remove (horizontal seams)
+	 * @return resized image, with every seam counted as TILED
+	 */
+	public SeamCarver.Result carve(Color[][] image, int deltaX, int deltaY) {
+		return carve(image, null, deltaX, deltaY);
+	}
+
+	/**
+	 * Shrinks an image by removing vertical, then horizontal seams, strip by strip
+	 * in parallel, reusing a luminance plane already derived from it
+	 *
+	 * @param image  2D array of Color objects representing the image
+	 * @param luma   luminance plane of the image (not modified), or null to derive
+	 *               it in LUMA mode
+	 * @param deltaX number of columns to remove (vertical seams)
+	 * @param deltaY number of rows to remove (horizontal seams)
+	 * @return resized image, with every seam counted as TILED
+	 */
+	public SeamCarver.Result carve(Color[][] image, byte[][] luma, int deltaX, int deltaY) {
+		long startTime = System.nanoTime();
+
+		Strip whole = new Strip();
+		whole.pixels = image;
+		if (this.energyMode == SeamCarver.EnergyMode.LUMA)
+			whole.luma = luma != null ? luma : SeamCarving.luminancePlane(image);
+
+		int threads = Math.min(this.tiles, Runtime.getRuntime().availableProcessors());
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			// Vertical seams on vertical strips
+			if (deltaX > 0)
+				whole = carveColumns(whole, deltaX, workers);
+
+			// Horizontal seams on horizontal strips, as vertical seams of the transpose
+			if (deltaY > 0) {
+				whole = transpose(whole);
+				whole = carveColumns(whole, deltaY, workers);
+				whole = transpose(whole);
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+
+		int[] seams = new int[SeamCarver.Strategy.values().length];
+		seams[SeamCarver.Strategy.TILED.ordinal()] = deltaX + deltaY;
+		return new SeamCarver.Result(whole.pixels, SeamCarver.Strategy.TILED, seams, whole.removedEnergy,
+				System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Removes vertical seams from an image, split into vertical strips carved in
+	 * parallel
+	 *
+	 * @param whole   the whole image
+	 * @param delta   number of columns to remove
+	 * @param workers executor the strips are carved on
+	 * @return the image, delta columns narrower
+	 */
+	private Strip carveColumns(Strip whole, int delta, ExecutorService workers) {
+		int cols = whole.pixels.length;
+		if (delta >= cols)
+			throw new IllegalArgumentException("Too much shrinkage");
+
+		// Every strip must keep at least one column of its core
+		int n = Math.max(1, Math.min(this.tiles, cols - delta));
+
+		// Core of strip k is columns [bounds[k], bounds[k + 1])
+		int[] bounds = new int[n + 1];
+		for (int k = 0; k <= n; k++) {
+			bounds[k] = (int) ((long) k * cols / n);
+		}
+
+		// Share the seams out in proportion to core width, then hand out the rest to
+		// strips with room to spare
+		int[] shares = new int[n];
+		int assigned = 0;
+		for (int k = 0; k < n; k++) {
+			shares[k] = (int) ((long) delta * (bounds[k + 1] - bounds[k]) / cols);
+			assigned += shares[k];
+		}
+		for (int k = 0; assigned < delta; k = (k + 1) % n) {
+			if (shares[k] < bounds[k + 1] - bounds[k] - 1) {
+				shares[k]++;
+				assigned++;
+			}
+		}
+
+		/* Carve each strip on its own worker */
+		List<Future<Strip>> futures = new ArrayList<Future<Strip>>();
+		final int[] margins = new int[n];
+		for (int k = 0; k < n; k++) {
+			final int left = Math.max(0, bounds[k] - this.overlap);
+			final int right = Math.min(cols, bounds[k + 1] + this.overlap);
+			final int leftMargin = bounds[k] - left;
+			final int rightMargin = right - bounds[k + 1];
+			final int share = shares[k];
+			margins[k] = leftMargin;
+
+			final Strip strip = new Strip();
+			strip.pixels = Arrays.copyOfRange(whole.pixels, left, right);
+			if (whole.luma != null)
+				strip.luma = Arrays.copyOfRange(whole.luma, left, right);
+
+			futures.add(workers.submit(new Callable<Strip>() {
+				public Strip call() {
+					carveStrip(strip, share, leftMargin, rightMargin);
+					return strip;
+				}
+			}));
+		}
+
+		/* Stitch the carved cores back together */
+		Strip stitched = new Strip();
+		stitched.pixels = new Color[cols - delta][];
+		if (whole.luma != null)
+			stitched.luma = new byte[cols - delta][];
+		stitched.removedEnergy = whole.removedEnergy;
+
+		int next = 0;
+		for (int k = 0; k < n; k++) {
+			Strip strip = join(futures.get(k));
+			int width = bounds[k + 1] - bounds[k] - shares[k];
+			System.arraycopy(strip.pixels, margins[k], stitched.pixels, next, width);
+			if (strip.luma != null)
+				System.arraycopy(strip.luma, margins[k], stitched.luma, next, width);
+			stitched.removedEnergy += strip.removedEnergy;
+			next += width;
+		}
+		return stitched;
+	}
+
+	/**
+	 * Removes vertical seams from a strip, keeping them out of its margins
+	 *
+	 * @param strip       strip to carve (modified)
+	 * @param count       number of seams to remove
+	 * @param leftMargin  columns on the left that belong to the neighbour
+	 * @param rightMargin columns on the right that belong to the neighbour
+	 * @throws CancellationException if the worker is interrupted
+	 */
+	private void carveStrip(Strip strip, int count, int leftMargin, int rightMargin) {
+		for (int s = 0; s < count; s++) {
+
+			// carve() shuts the workers down with interrupts if it fails or is
+			// interrupted itself
+			if (Thread.currentThread().isInterrupted())
+				throw new CancellationException("Strip carve cancelled");
+
+			double[][] energyArr = strip.luma != null ? SeamCarving.lumaEnergyFunction(strip.luma)
+					: SeamCarving.energyFunction(strip.pixels);
+
+			// Block the margins
+			int width = energyArr.length;
+			for (int i = 0; i < width; i++) {
+				if (i < leftMargin || i >= width - rightMargin)
+					Arrays.fill(energyArr[i], BLOCKED);
+			}
+
+			int[] seam = SeamCarving.traceSeamVertical(SeamCarving.findVerticalSeams(energyArr));
+			strip.removedEnergy += SeamCarver.seamEnergyVertical(energyArr, seam);
+			strip.pixels = SeamCarver.removeSeamVertical(strip.pixels, seam);
+			if (strip.luma != null)
+				strip.luma = SeamCarver.removeSeamVertical(strip.luma, seam);
+		}
+	}
+
+	/**
+	 * Waits for a strip, rethrowing failures unchecked
+	 */
+	private static Strip join(Future<Strip> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Carve cancelled");
+		}
+	}
+
+	/**
+	 * Swaps the columns and rows of an image and its luminance plane
+	 */
+	private static Strip transpose(Strip strip) {
+		int cols = strip.pixels.length;
+		int rows = strip.pixels[0].length;
+
+		Strip transposed = new Strip();
+		transposed.removedEnergy = strip.removedEnergy;
+		transposed.pixels = new Color[rows][cols];
+		if (strip.luma != null)
+			transposed.luma = new byte[rows][cols];
+
+		for (int i = 0; i < cols; i++) {
+			for (int j = 0; j < rows; j++) {
+				transposed.pixels[j][i] = strip.pixels[i][j];
+				if (strip.luma != null)
+					transposed.luma[j][i] = strip.luma[i][j];
+			}
+		}
+		return transposed;
+	}
+}
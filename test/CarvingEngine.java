@@ -0,0 +1,52 @@
+import java.awt.Color;
+
+/**
+ * A seam-carving implementation that can be checked against the reference
+ * carver in SeamCarving by DifferentialCheck. Implementations must have a
+ * public no-argument constructor to be loaded by class name.
+ *
+ * Images are 2D arrays of Color objects indexed [column][row], as everywhere
+ * else. Engines may modify the arrays they are given.
+ */
+public interface CarvingEngine {
+
+	/**
+	 *
+	 * @return name used in reports
+	 */
+	String getName();
+
+	/**
+	 * Computes the energy of each pixel
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return array of energy values for each pixel
+	 */
+	double[][] energy(Color[][] image);
+
+	/**
+	 * Finds the minimum energy vertical seam
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return for each row j, the column i of the seam pixel
+	 */
+	int[] verticalSeam(Color[][] image);
+
+	/**
+	 * Finds the minimum energy horizontal seam
+	 *
+	 * @param image 2D array of Color objects representing the image
+	 * @return for each column i, the row j of the seam pixel
+	 */
+	int[] horizontalSeam(Color[][] image);
+
+	/**
+	 * Shrinks an image by removing vertical and horizontal seams
+	 *
+	 * @param image  2D array of Color objects representing the image
+	 * @param deltaX number of columns to remove
+	 * @param deltaY number of rows to remove
+	 * @return resized image
+	 */
+	Color[][] carve(Color[][] image, int deltaX, int deltaY);
+}
@@ -0,0 +1,321 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks carving engines against the reference carver: the energyFunction ->
+ * findVerticalSeams/findHorizontalSeams -> carveSeamVertical/carveSeamHorizontal
+ * path of SeamCarving, driven by the carving loop main has always used. Ties
+ * are made deterministic so seams are reproducible.
+ *
+ * For every engine, compares the energy map, the minimum vertical and
+ * horizontal seams, and the pixels of the carved image with the reference, on
+ * the bundled test images and on random synthetic images, including 2-pixel
+ * wide and 2-pixel tall ones. Exits with status 1 if any engine disagrees,
+ * which fails "mvn verify".
+ *
+ * Arguments: --images=DIR (default ./testimages) directory of .jpg images,
+ * --seams=N (default 2) seams of each orientation to carve from them,
+ * --random=N (default 200) number of synthetic images, --seed=S seed for the
+ * synthetic images, and --engine=CLASS (repeatable) an extra CarvingEngine to
+ * check, by class name.
+ */
+public class DifferentialCheck {
+
+	// Largest difference in energy still considered equal
+	private static final double ENERGY_TOLERANCE = 1e-9;
+
+	// Largest side of a synthetic image
+	private static final int MAX_SYNTHETIC_SIZE = 40;
+
+	/**
+	 * The reference carver, using SeamCarving's building blocks and the original
+	 * carving loop from main
+	 */
+	public static class Reference implements CarvingEngine {
+
+		public String getName() {
+			return "reference";
+		}
+
+		public double[][] energy(Color[][] image) {
+			return SeamCarving.energyFunction(image);
+		}
+
+		public int[] verticalSeam(Color[][] image) {
+			return SeamCarving.traceSeamVertical(SeamCarving.findVerticalSeams(SeamCarving.energyFunction(image)));
+		}
+
+		public int[] horizontalSeam(Color[][] image) {
+			return SeamCarving
+					.traceSeamHorizontal(SeamCarving.findHorizontalSeams(SeamCarving.energyFunction(image)));
+		}
+
+		public Color[][] carve(Color[][] image, int deltaX, int deltaY) {
+			Color[][] resized = image.clone();
+
+			// Keep going until we are done with the horizontal and vertical carving.
+			// Recalculates the seam path array every time a seam is removed.
+			while (deltaY > 0 || deltaX > 0) {
+				double[][] energyArr = SeamCarving.energyFunction(resized);
+				SeamFindingPair[][] pathArrayV = SeamCarving.findVerticalSeams(energyArr);
+				SeamFindingPair[][] pathArrayH = SeamCarving.findHorizontalSeams(energyArr);
+				SeamFindingPair mPathV = SeamCarving.findMinSeamVertical(pathArrayV);
+				SeamFindingPair mPathH = SeamCarving.findMinSeamHorizontal(pathArrayH);
+
+				if (deltaY == 0) {
+					resized = SeamCarving.carveSeamVertical(pathArrayV, resized);
+					deltaX--;
+				} else if (deltaX == 0) {
+					resized = SeamCarving.carveSeamHorizontal(pathArrayH, resized);
+					deltaY--;
+				} else if (mPathV.getDouble() < mPathH.getDouble()) {
+					resized = SeamCarving.carveSeamVertical(pathArrayV, resized);
+					deltaX--;
+				} else {
+					resized = SeamCarving.carveSeamHorizontal(pathArrayH, resized);
+					deltaY--;
+				}
+			}
+			return resized;
+		}
+	}
+
+	/**
+	 * SeamCarver without a time budget, optionally in low-memory mode. Energy maps
+	 * and seams come from SeamCarver too, not from the reference.
+	 */
+	public static class Carver implements CarvingEngine {
+
+		private final boolean lowMemory;
+
+		public Carver() {
+			this(false);
+		}
+
+		public Carver(boolean lowMemory) {
+			this.lowMemory = lowMemory;
+		}
+
+		public String getName() {
+			return this.lowMemory ? "SeamCarver (low memory)" : "SeamCarver";
+		}
+
+		public double[][] energy(Color[][] image) {
+			return newCarver().energy(image);
+		}
+
+		public int[] verticalSeam(Color[][] image) {
+			return newCarver().verticalSeam(image);
+		}
+
+		public int[] horizontalSeam(Color[][] image) {
+			return newCarver().horizontalSeam(image);
+		}
+
+		public Color[][] carve(Color[][] image, int deltaX, int deltaY) {
+			return newCarver().carve(image, deltaX, deltaY).getImage();
+		}
+
+		private SeamCarver newCarver() {
+			SeamCarver carver = new SeamCarver(0);
+			carver.setLowMemory(this.lowMemory);
+			return carver;
+		}
+	}
+
+	/**
+	 * Runs the check
+	 *
+	 * @param args --images=, --seams=, --random=, --seed=, --engine=
+	 * @throws Exception if an image cannot be read or an engine cannot be loaded
+	 */
+	public static void main(String[] args) throws Exception {
+		File imageDir = new File("./testimages");
+		int seams = 2;
+		int synthetic = 200;
+		long seed = 143;
+		List<CarvingEngine> engines = new ArrayList<CarvingEngine>();
+		engines.add(new Carver(false));
+		engines.add(new Carver(true));
+
+		for (String arg : args) {
+			String value = arg.substring(arg.indexOf('=') + 1);
+			if (arg.startsWith("--images="))
+				imageDir = new File(value);
+			else if (arg.startsWith("--seams="))
+				seams = Integer.parseInt(value);
+			else if (arg.startsWith("--random="))
+				synthetic = Integer.parseInt(value);
+			else if (arg.startsWith("--seed="))
+				seed = Long.parseLong(value);
+			else if (arg.startsWith("--engine="))
+				engines.add((CarvingEngine) Class.forName(value).getConstructor().newInstance());
+			else
+				throw new IllegalArgumentException("Unknown argument " + arg);
+		}
+
+		SeamCarving.setDeterministicTies(true);
+		CarvingEngine reference = new Reference();
+		int failures = 0;
+		int cases = 0;
+
+		/* Bundled images */
+		File[] files = imageDir.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (!file.getName().endsWith(".jpg"))
+					continue;
+				Color[][] image = readImage(file);
+				int deltaX = Math.min(seams, image.length - 2);
+				int deltaY = Math.min(seams, image[0].length - 2);
+				failures += check(reference, engines, file.getName(), image, deltaX, deltaY);
+				cases++;
+			}
+		}
+
+		/* Synthetic images, every fifth one 2 px wide or tall */
+		Random random = new Random(seed);
+		for (int n = 0; n < synthetic; n++) {
+			int cols = 2 + random.nextInt(MAX_SYNTHETIC_SIZE - 1);
+			int rows = 2 + random.nextInt(MAX_SYNTHETIC_SIZE - 1);
+			if (n % 5 == 0)
+				cols = 2;
+			else if (n % 5 == 1)
+				rows = 2;
+
+			// A small palette makes equal energies, and so ties, common
+			int levels = 2 + random.nextInt(4);
+			Color[][] image = new Color[cols][rows];
+			for (int i = 0; i < cols; i++) {
+				for (int j = 0; j < rows; j++) {
+					image[i][j] = new Color(255 * random.nextInt(levels) / (levels - 1),
+							255 * random.nextInt(levels) / (levels - 1), 255 * random.nextInt(levels) / (levels - 1));
+				}
+			}
+
+			// Carving must leave 2 px in each direction to find seams in between, except
+			// when carving in one direction only, which may go down to 1 px
+			int deltaX = random.nextInt(cols - 1);
+			int deltaY = random.nextInt(rows - 1);
+			if (deltaY == 0 && random.nextBoolean())
+				deltaX = cols - 1;
+			else if (deltaX == 0 && random.nextBoolean())
+				deltaY = rows - 1;
+
+			failures += check(reference, engines, "random" + n + " " + cols + "x" + rows, image, deltaX, deltaY);
+			cases++;
+		}
+
+		System.out.println(cases + " images, " + engines.size() + " engines, " + failures + " mismatches");
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Compares every engine with the reference on one image
+	 *
+	 * @return number of engines that disagree with the reference
+	 */
+	private static int check(CarvingEngine reference, List<CarvingEngine> engines, String name, Color[][] image,
+			int deltaX, int deltaY) {
+		double[][] energy = reference.energy(copy(image));
+		int[] seamV = reference.verticalSeam(copy(image));
+		int[] seamH = reference.horizontalSeam(copy(image));
+		Color[][] carved = reference.carve(copy(image), deltaX, deltaY);
+
+		int failures = 0;
+		for (CarvingEngine engine : engines) {
+			String mismatch = compareEnergy(energy, engine.energy(copy(image)));
+			if (mismatch == null)
+				mismatch = compareSeam("vertical seam", seamV, engine.verticalSeam(copy(image)));
+			if (mismatch == null)
+				mismatch = compareSeam("horizontal seam", seamH, engine.horizontalSeam(copy(image)));
+			if (mismatch == null)
+				mismatch = comparePixels(carved, engine.carve(copy(image), deltaX, deltaY));
+
+			if (mismatch != null) {
+				System.out.println("MISMATCH " + engine.getName() + " on " + name + " (-" + deltaX + ", -" + deltaY
+						+ "): " + mismatch);
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * @return description of the first differing energy, or null if equal
+	 */
+	private static String compareEnergy(double[][] expected, double[][] actual) {
+		if (expected.length != actual.length || expected[0].length != actual[0].length)
+			return "energy map is " + actual.length + "x" + actual[0].length;
+		for (int i = 0; i < expected.length; i++) {
+			for (int j = 0; j < expected[i].length; j++) {
+				if (Math.abs(expected[i][j] - actual[i][j]) > ENERGY_TOLERANCE)
+					return "energy at (" + i + ", " + j + ") is " + actual[i][j] + ", expected " + expected[i][j];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return description of the first differing seam index, or null if equal
+	 */
+	private static String compareSeam(String what, int[] expected, int[] actual) {
+		if (expected.length != actual.length)
+			return what + " has length " + actual.length + ", expected " + expected.length;
+		for (int k = 0; k < expected.length; k++) {
+			if (expected[k] != actual[k])
+				return what + " at " + k + " is " + actual[k] + ", expected " + expected[k];
+		}
+		return null;
+	}
+
+	/**
+	 * @return description of the first differing pixel, or null if equal
+	 */
+	private static String comparePixels(Color[][] expected, Color[][] actual) {
+		if (expected.length != actual.length || expected[0].length != actual[0].length)
+			return "carved image is " + actual.length + "x" + actual[0].length + ", expected " + expected.length
+					+ "x" + expected[0].length;
+		for (int i = 0; i < expected.length; i++) {
+			for (int j = 0; j < expected[i].length; j++) {
+				if (expected[i][j].getRGB() != actual[i][j].getRGB())
+					return "pixel at (" + i + ", " + j + ") is " + actual[i][j] + ", expected " + expected[i][j];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copies the columns of an image, so that engines cannot affect each other
+	 */
+	private static Color[][] copy(Color[][] image) {
+		Color[][] copy = new Color[image.length][];
+		for (int i = 0; i < image.length; i++) {
+			copy[i] = image[i].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * Reads an image file into an array of rgb values, as main does
+	 */
+	private static Color[][] readImage(File file) throws IOException {
+		BufferedImage source = ImageIO.read(file);
+		Color[][] image = new Color[source.getWidth()][source.getHeight()];
+		for (int i = 0; i < image.length; i++) {
+			for (int j = 0; j < image[i].length; j++) {
+				image[i][j] = new Color(source.getRGB(i, j) & 0xffffff);
+			}
+		}
+		return image;
+	}
+}